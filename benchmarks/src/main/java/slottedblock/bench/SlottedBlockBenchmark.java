@@ -0,0 +1,124 @@
+package slottedblock.bench;
+
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import slottedblock.Block;
+import slottedblock.RID;
+import slottedblock.SlottedBlock;
+
+/**
+ * JMH benchmarks for the SlottedBlock operations. Each trial builds a block
+ * of the given size, filled to the given fraction with records of the given
+ * size, and keeps a copy of it as a template.
+ *
+ * insertRecord and deleteRecord change the block, so they first restore it
+ * from the template; the reset benchmark measures that restore alone so it
+ * can be subtracted.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlottedBlockBenchmark
+{
+    @Param({"1024", "4096", "16384"})
+    public int blockSize;
+
+    @Param({"8", "32", "128"})
+    public int recordSize;
+
+    /**
+     * Fraction of the block in use before each operation.
+     */
+    @Param({"0.25", "0.5", "0.9"})
+    public double fill;
+
+    private Block block;
+    private SlottedBlock sb;
+    private byte[] template;
+    private byte[] record;
+    private RID[] rids;
+    private RID middleRid;
+    private int nextRid;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+	block = new Block(blockSize);
+	sb = new SlottedBlock(block);
+	sb.init();
+	sb.setBlockId(0);
+
+	IntBuffer ints = ByteBuffer.wrap(record = new byte[recordSize]).asIntBuffer();
+	for(int i = 0; i < ints.capacity(); i++) {
+	    ints.put(i, i);
+	}
+
+	//always leave room for the record insertRecord adds.
+	List<RID> inserted = new ArrayList<RID>();
+	while(inserted.isEmpty()
+	      || (blockSize - sb.getAvailableSpace() < fill*blockSize
+		  && sb.getAvailableSpace() >= 2*recordSize + 2*SlottedBlock.SIZE_OF_INT)) {
+	    inserted.add(sb.insertRecord(record));
+	}
+	rids = inserted.toArray(new RID[0]);
+	middleRid = rids[rids.length/2];
+	template = block.data.clone();
+    }
+
+    private void reset()
+    {
+	System.arraycopy(template, 0, block.data, 0, template.length);
+    }
+
+    @Benchmark
+    public byte[] resetOnly()
+    {
+	reset();
+	return block.data;
+    }
+
+    @Benchmark
+    public RID insertRecord()
+    {
+	reset();
+	return sb.insertRecord(record);
+    }
+
+    @Benchmark
+    public boolean deleteRecord()
+    {
+	reset();
+	return sb.deleteRecord(middleRid);
+    }
+
+    @Benchmark
+    public byte[] getRecord()
+    {
+	if(nextRid == rids.length) {
+	    nextRid = 0;
+	}
+	return sb.getRecord(rids[nextRid++]);
+    }
+
+    @Benchmark
+    public int getAvailableSpace()
+    {
+	return sb.getAvailableSpace();
+    }
+
+    @Benchmark
+    public void iterate(Blackhole bh)
+    {
+	for(RID rid = sb.firstRecord(); rid != null; rid = sb.nextRecord(rid)) {
+	    bh.consume(sb.getRecord(rid));
+	}
+    }
+}
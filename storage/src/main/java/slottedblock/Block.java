@@ -1,3 +1,5 @@
+package slottedblock;
+
 /**
  * Class to hold a block's worth of data in memory.
  * @author Dave Musicant, with considerable inspiration from the UW-Madison
@@ -17,6 +19,15 @@ public class Block
 
     public Block()
     {
-        data = new byte[BLOCKSIZE];
+        this(BLOCKSIZE);
+    }
+
+    /**
+     * Constructs a block of a size other than BLOCKSIZE.
+     * @param size the size of the block in bytes, a multiple of 4.
+     */
+    public Block(int size)
+    {
+        data = new byte[size];
     }
 }
@@ -0,0 +1,154 @@
+package slottedblock;
+
+import java.util.*;
+
+/**
+ * Background task that merges sparse blocks of a heap file. Each step looks
+ * for a block whose fill (taken from the block's own slot array, or from the
+ * block map if the block is compressed) is below a threshold, moves its live
+ * records into a neighbouring block, unlinks it from the chain and returns
+ * it to the free pool. Blocks with no records left are simply unlinked.
+ *
+ * A step frees at most one block. The heap file lock is taken separately
+ * for each block the sweep looks at and released before moving on, and
+ * run() sleeps between steps, so foreground inserts, deletes and scans are
+ * only ever held up for one block's worth of work.
+ */
+public class BlockVacuum implements Runnable
+{
+    private HeapFile heapFile;
+    private double fillThreshold;
+    private long pauseMillis;
+    private HeapFile.RecordMoveListener listener;
+    private volatile boolean stopped;
+
+    /**
+     * Block to look at first on the next step, so that successive steps
+     * sweep the chain instead of rescanning it from the start.
+     */
+    private int cursorBlockId;
+
+    /**
+     * Constructs a vacuum for a heap file.
+     * @param heapFile the heap file to vacuum.
+     * @param fillThreshold blocks with less than this fraction of the block
+     * in use are merged into a neighbour.
+     * @param pauseMillis how long run() sleeps between steps.
+     * @param listener told about every record that is moved. Moving a
+     * record changes its RID and leaves nothing behind at the old one, which
+     * may later be reused, so the listener must update whatever holds RIDs.
+     * @throws NullPointerException if listener is null.
+     */
+    public BlockVacuum(HeapFile heapFile, double fillThreshold,
+                       long pauseMillis, HeapFile.RecordMoveListener listener)
+    {
+        this.heapFile = heapFile;
+        this.fillThreshold = fillThreshold;
+        this.pauseMillis = pauseMillis;
+        this.listener = Objects.requireNonNull(listener);
+        this.cursorBlockId = SlottedBlock.INVALID_BLOCK;
+    }
+
+    /**
+     * Vacuums until stop() is called, one block per step, sleeping between
+     * steps.
+     */
+    public void run()
+    {
+	while(!stopped) {
+	    vacuumStep();
+	    try {
+		Thread.sleep(pauseMillis);
+	    } catch(InterruptedException e) {
+		return;
+	    }
+	}
+    }
+
+    /**
+     * Asks run() to return after the current step.
+     */
+    public void stop()
+    {
+	stopped = true;
+    }
+
+    /**
+     * Merges or unlinks at most one sparse block.
+     * @return true if a block was freed, false if a full sweep of the chain
+     * found nothing to do.
+     */
+    public boolean vacuumStep()
+    {
+	int numBlocks = heapFile.getNumBlocks();
+	for(int i = 0; i < numBlocks; i++) {
+	    if(visitBlock()) {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    /**
+     * Looks at the block under the cursor, merging it if it is sparse, and
+     * moves the cursor on. Holds the heap file lock for this block only.
+     * @return true if the block was freed.
+     */
+    private boolean visitBlock()
+    {
+	synchronized(heapFile) {
+	    if(!heapFile.isLinked(cursorBlockId)) {
+		cursorBlockId = heapFile.getFirstBlockId();
+		if(cursorBlockId == SlottedBlock.INVALID_BLOCK) {
+		    return false;
+		}
+	    }
+	    //cold blocks are judged from the block map, without decompressing them.
+	    int blockId = cursorBlockId;
+	    cursorBlockId = heapFile.getNextBlockId(blockId);
+	    return heapFile.getFill(blockId) < fillThreshold
+		&& mergeBlock(heapFile.readBlock(blockId));
+	}
+    }
+
+    /**
+     * Moves the records of a block into its previous (or else next)
+     * neighbour and frees it.
+     * @return true if the block was freed, false if neither neighbour has
+     * room for its records.
+     */
+    private boolean mergeBlock(SlottedBlock sb)
+    {
+	if(sb.empty()) {
+	    heapFile.unlinkBlock(sb.getBlockId());
+	    return true;
+	}
+
+	//room needed in the target: the record bytes plus a new slot for each.
+	int needed = 0;
+	for(RID rid = sb.firstRecord(); rid != null; rid = sb.nextRecord(rid)) {
+	    needed += sb.getRecord(rid).length + 2*SlottedBlock.SIZE_OF_INT;
+	}
+
+	SlottedBlock target = null;
+	int[] neighbours = {sb.getPrevBlockId(), sb.getNextBlockId()};
+	for(int neighbourId : neighbours) {
+	    if(neighbourId != SlottedBlock.INVALID_BLOCK) {
+		if(heapFile.getAvailableSpace(neighbourId) >= needed) {
+		    target = heapFile.getBlock(neighbourId);
+		    break;
+		}
+	    }
+	}
+	if(target == null) {
+	    return false;
+	}
+
+	for(RID rid = sb.firstRecord(); rid != null; rid = sb.nextRecord(rid)) {
+	    RID newRid = target.insertRecord(sb.getRecord(rid));
+	    listener.recordMoved(rid, newRid);
+	}
+	heapFile.unlinkBlock(sb.getBlockId());
+	return true;
+    }
+}
@@ -0,0 +1,672 @@
+package slottedblock;
+
+import java.util.*;
+
+/**
+ * Heap file made of a doubly linked chain of slotted blocks. Blocks are kept
+ * in memory, keyed by block id. Blocks that have been unlinked from the chain
+ * go back to a free pool and are reused before new block ids are handed out.
+ *
+ * Blocks can also be moved to a compressed cold tier, for tables that are
+ * rarely read. A cold block is kept only as an LZCodec extent in a block map,
+ * along with its free space and chain links, so that inserts and the vacuum
+ * can pass over it without decompressing it. Reading a cold block
+ * decompresses it into a temporary frame and leaves it cold; only a write
+ * brings it back into a hot frame.
+ *
+ * Readers that must not be disturbed by writers open a Snapshot. Blocks are
+ * copied on write: a block that an open snapshot can still see is copied to
+ * a new version before it is changed, and the snapshot keeps reading the old
+ * one. Each version records the epoch it was made in, and each snapshot the
+ * epoch it was opened in, so a writer only copies when it has to. Old
+ * versions are reclaimed (their frames reused for later copies) once every
+ * snapshot that could see them has been closed.
+ *
+ * All public methods are synchronized on the heap file, so a background
+ * task such as BlockVacuum can run against it while records are inserted
+ * and deleted.
+ */
+public class HeapFile
+{
+    /**
+     * Callback used when a record is moved to another block, so that
+     * indexes holding its RID can be updated.
+     */
+    public static interface RecordMoveListener
+    {
+        void recordMoved(RID oldRid, RID newRid);
+    }
+
+    /**
+     * Consistent, read-only image of the heap file as it was when the
+     * snapshot was opened. Opening one costs nothing beyond noting the
+     * epoch: each block is looked up when asked for, taking the current
+     * version if it is older than the snapshot and otherwise the retired
+     * version that was current when the snapshot was opened. Blocks
+     * returned by a snapshot must not be modified. A snapshot should be
+     * closed when done (it can be used in try-with-resources) so that the
+     * block versions it holds can be reclaimed.
+     */
+    public class Snapshot implements AutoCloseable
+    {
+        private long epoch;
+        private int firstBlockId;
+
+        private Snapshot(long epoch)
+        {
+            this.epoch = epoch;
+            this.firstBlockId = HeapFile.this.firstBlockId;
+        }
+
+        /**
+         * Gets the id of the first block in the chain, as of the snapshot.
+         * @return the first block id, or INVALID_BLOCK if the file was empty.
+         */
+        public int getFirstBlockId()
+        {
+            return firstBlockId;
+        }
+
+        /**
+         * Gets a block of the chain, as of the snapshot.
+         * @param blockId the block id.
+         * @return the block, wrapped as a slotted block.
+         * @throws BadBlockIdException if the block id was not in the chain.
+         */
+        public SlottedBlock getBlock(int blockId)
+        {
+	    synchronized(HeapFile.this) {
+		Long version = blockEpochs.get(blockId);
+		if(version != null && version < epoch) {
+		    Block block = blocks.get(blockId);
+		    if(block == null) {
+			block = coldFrame(blockId);
+		    }
+		    return new SlottedBlock(block);
+		}
+		List<RetiredBlock> versions = retiredBlocks.get(blockId);
+		if(versions != null) {
+		    for(RetiredBlock retired : versions) {
+			if(retired.createdEpoch < epoch && epoch <= retired.retiredEpoch) {
+			    return new SlottedBlock(retired.block);
+			}
+		    }
+		}
+		throw new SlottedBlock.BadBlockIdException();
+	    }
+        }
+
+        /**
+         * Returns the record associated with an RID, as of the snapshot.
+         * @param rid the rid of interest
+         * @return a copy of the record.
+         * @throws BadBlockIdException if the block id within rid is invalid
+         */
+        public byte[] getRecord(RID rid)
+        {
+            return getBlock(rid.blockId).getRecord(rid);
+        }
+
+        /**
+         * Closes the snapshot, letting block versions only it could see be
+         * reclaimed.
+         */
+        public void close()
+        {
+	    synchronized(HeapFile.this) {
+		if(activeSnapshots.remove(this)) {
+		    reclaim();
+		}
+	    }
+        }
+    }
+
+    /**
+     * Block version that has been replaced. It is seen by the snapshots
+     * opened after it was made and no later than the epoch it was retired
+     * in.
+     */
+    private static class RetiredBlock
+    {
+        long createdEpoch;
+        long retiredEpoch;
+        Block block;
+
+        RetiredBlock(long createdEpoch, long retiredEpoch, Block block)
+        {
+            this.createdEpoch = createdEpoch;
+            this.retiredEpoch = retiredEpoch;
+            this.block = block;
+        }
+    }
+
+    /**
+     * Block map entry of a cold block.
+     */
+    private static class ColdBlock
+    {
+        byte[] extent;
+        int blockSize;
+        int availableSpace;
+        int prevBlockId;
+        int nextBlockId;
+
+        ColdBlock(byte[] extent, SlottedBlock sb)
+        {
+            this.extent = extent;
+            this.blockSize = sb.getBlockSize();
+            this.availableSpace = sb.getAvailableSpace();
+            this.prevBlockId = sb.getPrevBlockId();
+            this.nextBlockId = sb.getNextBlockId();
+        }
+    }
+
+    private Map<Integer, Block> blocks;
+    private Map<Integer, ColdBlock> coldBlocks;
+    private Deque<Integer> freeBlocks;
+    private int nextNewBlockId;
+    private int firstBlockId;
+    private int lastBlockId;
+
+    /**
+     * Current epoch. It is advanced each time a snapshot is opened.
+     */
+    private long epoch;
+    private Map<Integer, Long> blockEpochs;
+    private List<Snapshot> activeSnapshots;
+    private Map<Integer, List<RetiredBlock>> retiredBlocks;
+    private int numRetiredBlocks;
+    private Deque<Block> freeFrames;
+
+    /**
+     * Constructs an empty heap file.
+     */
+    public HeapFile()
+    {
+        //kept in order of use by touch(), so the least recently used hot
+        //blocks come first. Lookups of metadata leave the order alone.
+        blocks = new LinkedHashMap<Integer, Block>();
+        coldBlocks = new HashMap<Integer, ColdBlock>();
+        freeBlocks = new ArrayDeque<Integer>();
+        nextNewBlockId = 0;
+        firstBlockId = SlottedBlock.INVALID_BLOCK;
+        lastBlockId = SlottedBlock.INVALID_BLOCK;
+        epoch = 0;
+        blockEpochs = new HashMap<Integer, Long>();
+        activeSnapshots = new ArrayList<Snapshot>();
+        retiredBlocks = new HashMap<Integer, List<RetiredBlock>>();
+        numRetiredBlocks = 0;
+        freeFrames = new ArrayDeque<Block>();
+    }
+
+    /**
+     * Opens a snapshot of the heap file. Inserts and deletes can go on
+     * while the snapshot is read; they are not seen through it.
+     * @return the new snapshot.
+     */
+    public synchronized Snapshot openSnapshot()
+    {
+	Snapshot snapshot = new Snapshot(++epoch);
+	activeSnapshots.add(snapshot);
+	return snapshot;
+    }
+
+    /**
+     * Gets the number of replaced block versions still held for open
+     * snapshots.
+     * @return the number of retired versions not yet reclaimed.
+     */
+    public synchronized int getNumRetiredBlocks()
+    {
+        return numRetiredBlocks;
+    }
+
+    /**
+     * Gets the id of the first block in the chain.
+     * @return the first block id, or INVALID_BLOCK if the file is empty.
+     */
+    public synchronized int getFirstBlockId()
+    {
+        return firstBlockId;
+    }
+
+    /**
+     * Gets the number of blocks currently linked into the chain.
+     * @return the number of blocks in use.
+     */
+    public synchronized int getNumBlocks()
+    {
+        return blocks.size() + coldBlocks.size() - freeBlocks.size();
+    }
+
+    /**
+     * Gets the number of blocks waiting in the free pool.
+     * @return the number of free blocks.
+     */
+    public synchronized int getNumFreeBlocks()
+    {
+        return freeBlocks.size();
+    }
+
+    /**
+     * Gets a block of the chain so that it can be modified. If an open
+     * snapshot can still see the current version of the block, it is copied
+     * first.
+     * @param blockId the block id.
+     * @return the block, wrapped as a slotted block.
+     * @throws BadBlockIdException if the block id is not in the chain.
+     */
+    public synchronized SlottedBlock getBlock(int blockId)
+    {
+	checkLinked(blockId);
+	Block block = writableFrame(blockId);
+	touch(blockId);
+	return new SlottedBlock(block);
+    }
+
+    /**
+     * Gets a block of the chain for reading only, without copying it. A cold
+     * block is decompressed into a temporary frame and stays cold. The block
+     * must not be modified; use getBlock for that.
+     * @param blockId the block id.
+     * @return the block, wrapped as a slotted block.
+     * @throws BadBlockIdException if the block id is not in the chain.
+     */
+    public synchronized SlottedBlock readBlock(int blockId)
+    {
+	checkLinked(blockId);
+	Block block = blocks.get(blockId);
+	if(block == null) {
+	    block = coldFrame(blockId);
+	}
+	return new SlottedBlock(block);
+    }
+
+    /**
+     * Gets the fraction of a block in use, without decompressing it if it
+     * is cold.
+     * @param blockId the block id.
+     * @return the fill of the block, between 0 and 1.
+     * @throws BadBlockIdException if the block id is not in the chain.
+     */
+    synchronized double getFill(int blockId)
+    {
+	checkLinked(blockId);
+	ColdBlock cold = coldBlocks.get(blockId);
+	int blockSize = cold != null ? cold.blockSize : blocks.get(blockId).data.length;
+	return (double) (blockSize - getAvailableSpace(blockId)) / blockSize;
+    }
+
+    /**
+     * Gets the available space of a block (as in
+     * SlottedBlock.getAvailableSpace), without decompressing it if it is
+     * cold.
+     * @param blockId the block id.
+     * @return the amount of available space in bytes.
+     * @throws BadBlockIdException if the block id is not in the chain.
+     */
+    synchronized int getAvailableSpace(int blockId)
+    {
+	checkLinked(blockId);
+	ColdBlock cold = coldBlocks.get(blockId);
+	if(cold != null) {
+	    return cold.availableSpace;
+	}
+	return new SlottedBlock(blocks.get(blockId)).getAvailableSpace();
+    }
+
+    /**
+     * Whether a block is linked into the chain (as opposed to unknown or in
+     * the free pool).
+     * @param blockId the block id.
+     * @return true if the block is in the chain.
+     */
+    synchronized boolean isLinked(int blockId)
+    {
+	return !freeBlocks.contains(blockId)
+	    && (blocks.containsKey(blockId) || coldBlocks.containsKey(blockId));
+    }
+
+    /**
+     * Gets the id of the block after a block in the chain, without
+     * decompressing it if it is cold.
+     * @param blockId the block id.
+     * @return the next block id.
+     * @throws BadBlockIdException if the block id is not in the chain.
+     */
+    synchronized int getNextBlockId(int blockId)
+    {
+	checkLinked(blockId);
+	ColdBlock cold = coldBlocks.get(blockId);
+	if(cold != null) {
+	    return cold.nextBlockId;
+	}
+	return new SlottedBlock(blocks.get(blockId)).getNextBlockId();
+    }
+
+    /**
+     * Gets the number of blocks in the compressed cold tier.
+     * @return the number of cold blocks.
+     */
+    public synchronized int getNumColdBlocks()
+    {
+	int count = 0;
+	for(int blockId : coldBlocks.keySet()) {
+	    if(!freeBlocks.contains(blockId)) {
+		count++;
+	    }
+	}
+	return count;
+    }
+
+    /**
+     * Gets the total size of the compressed extents in the cold tier.
+     * @return the number of bytes used by cold blocks.
+     */
+    public synchronized int getColdBytes()
+    {
+	int total = 0;
+	for(Map.Entry<Integer, ColdBlock> entry : coldBlocks.entrySet()) {
+	    if(!freeBlocks.contains(entry.getKey())) {
+		total += entry.getValue().extent.length;
+	    }
+	}
+	return total;
+    }
+
+    /**
+     * Whether a block of the chain is in the compressed cold tier.
+     * @param blockId the block id.
+     * @return true if the block is cold.
+     * @throws BadBlockIdException if the block id is not in the chain.
+     */
+    synchronized boolean isCold(int blockId)
+    {
+	checkLinked(blockId);
+	return coldBlocks.containsKey(blockId);
+    }
+
+    /**
+     * Compresses a block of the chain into the cold tier.
+     * @param blockId the block to compress.
+     * @return true if the block is now cold, false if it did not compress
+     * to less than a block and was left as it is.
+     * @throws BadBlockIdException if the block id is not in the chain.
+     */
+    public synchronized boolean compressBlock(int blockId)
+    {
+	if(coldBlocks.containsKey(blockId)) {
+	    return true;
+	}
+	SlottedBlock sb = readBlock(blockId);
+	byte[] extent = LZCodec.compress(blocks.get(blockId).data);
+	if(extent.length >= sb.getBlockSize()) {
+	    return false;
+	}
+	coldBlocks.put(blockId, new ColdBlock(extent, sb));
+	blocks.remove(blockId);
+	return true;
+    }
+
+    /**
+     * Compresses the least recently used blocks of the chain until at most
+     * the given number of blocks is left uncompressed.
+     * @param maxHotBlocks the number of blocks to keep uncompressed.
+     */
+    public synchronized void compressColdBlocks(int maxHotBlocks)
+    {
+	List<Integer> candidates = new ArrayList<Integer>();
+	for(int blockId : blocks.keySet()) {
+	    if(!freeBlocks.contains(blockId)) {
+		candidates.add(blockId);
+	    }
+	}
+	for(int i = 0; i < candidates.size() - maxHotBlocks; i++) {
+	    compressBlock(candidates.get(i));
+	}
+    }
+
+    /**
+     * Inserts a new record into the first block of the chain with room for
+     * it, adding a block at the end of the chain if none has room. Cold
+     * blocks are passed over using the free space in the block map; only
+     * the block that takes the record is decompressed.
+     * @param record the record to be inserted.
+     * @return the RID of the new record.
+     * @throws BlockFullException if the record does not fit in an empty
+     * block.
+     */
+    public synchronized RID insertRecord(byte[] record)
+    {
+	int blockId = firstBlockId;
+	while(blockId != SlottedBlock.INVALID_BLOCK) {
+	    if(getAvailableSpace(blockId) >= record.length) {
+		return getBlock(blockId).insertRecord(record);
+	    }
+	    blockId = getNextBlockId(blockId);
+	}
+
+	SlottedBlock sb = allocateBlock();
+	try {
+	    return sb.insertRecord(record);
+	} catch(SlottedBlock.BlockFullException e) {
+	    unlinkBlock(sb.getBlockId());
+	    throw e;
+	}
+    }
+
+    /**
+     * Returns the record associated with an RID.
+     * @param rid the rid of interest
+     * @return a copy of the record.
+     * @throws BadBlockIdException if the block id within rid is invalid
+     */
+    public synchronized byte[] getRecord(RID rid)
+    {
+	checkLinked(rid.blockId);
+	Block block = blocks.get(rid.blockId);
+	if(block != null) {
+	    touch(rid.blockId);
+	    return new SlottedBlock(block).getRecord(rid);
+	}
+	//the temporary frame goes straight back to the pool.
+	block = coldFrame(rid.blockId);
+	try {
+	    return new SlottedBlock(block).getRecord(rid);
+	} finally {
+	    freeFrames.add(block);
+	}
+    }
+
+    /**
+     * Deletes the record with the given RID.
+     * @param rid the RID to be deleted.
+     * @return true if successful, false if the rid is not found.
+     * @throws BadBlockIdException if the block id within rid is invalid
+     */
+    public synchronized boolean deleteRecord(RID rid)
+    {
+	return getBlock(rid.blockId).deleteRecord(rid);
+    }
+
+    /**
+     * Takes a block from the free pool (or makes a new one), initializes it
+     * and links it at the end of the chain.
+     * @return the new block.
+     */
+    synchronized SlottedBlock allocateBlock()
+    {
+	int blockId;
+	if(!freeBlocks.isEmpty()) {
+	    blockId = freeBlocks.poll();
+	} else {
+	    blockId = nextNewBlockId++;
+	    blocks.put(blockId, new Block());
+	    blockEpochs.put(blockId, epoch);
+	}
+	//a freed block may still be part of the chain seen by a snapshot.
+	SlottedBlock sb = new SlottedBlock(writableFrame(blockId));
+	sb.init();
+	sb.setBlockId(blockId);
+	sb.setPrevBlockId(lastBlockId);
+
+	if(lastBlockId == SlottedBlock.INVALID_BLOCK) {
+	    firstBlockId = blockId;
+	} else {
+	    new SlottedBlock(writableFrame(lastBlockId)).setNextBlockId(blockId);
+	}
+	lastBlockId = blockId;
+	return sb;
+    }
+
+    /**
+     * Unlinks a block from the chain and returns it to the free pool. Any
+     * records still in the block are lost.
+     * @param blockId the block to unlink.
+     */
+    synchronized void unlinkBlock(int blockId)
+    {
+	checkLinked(blockId);
+	ColdBlock cold = coldBlocks.get(blockId);
+	SlottedBlock sb = cold != null ? null : new SlottedBlock(blocks.get(blockId));
+	int prevId = cold != null ? cold.prevBlockId : sb.getPrevBlockId();
+	int nextId = cold != null ? cold.nextBlockId : sb.getNextBlockId();
+
+	if(prevId == SlottedBlock.INVALID_BLOCK) {
+	    firstBlockId = nextId;
+	} else {
+	    new SlottedBlock(writableFrame(prevId)).setNextBlockId(nextId);
+	}
+	if(nextId == SlottedBlock.INVALID_BLOCK) {
+	    lastBlockId = prevId;
+	} else {
+	    new SlottedBlock(writableFrame(nextId)).setPrevBlockId(prevId);
+	}
+	freeBlocks.add(blockId);
+    }
+
+    private void checkLinked(int blockId)
+    {
+	if(!isLinked(blockId)) {
+	    throw new SlottedBlock.BadBlockIdException();
+	}
+    }
+
+    /**
+     * Moves a hot block to the most recently used end of the block map.
+     * Only real use of a block's records counts; the block map lookups done
+     * by the insert walk and the vacuum do not.
+     */
+    private void touch(int blockId)
+    {
+	Block block = blocks.remove(blockId);
+	if(block != null) {
+	    blocks.put(blockId, block);
+	}
+    }
+
+    /**
+     * Decompresses a cold block into a frame from the pool, leaving the
+     * block cold.
+     */
+    private Block coldFrame(int blockId)
+    {
+	ColdBlock cold = coldBlocks.get(blockId);
+	Block block = takeFrame(cold.blockSize);
+	LZCodec.decompress(cold.extent, block.data);
+	return block;
+    }
+
+    /**
+     * Takes a frame of the given size from the pool, or makes one.
+     */
+    private Block takeFrame(int size)
+    {
+	if(freeFrames.isEmpty() || freeFrames.peek().data.length != size) {
+	    return new Block(size);
+	}
+	return freeFrames.poll();
+    }
+
+    /**
+     * Finds the current frame of a block for writing. A cold block is
+     * decompressed and becomes hot again, since its extent would be out of
+     * date once the block is changed. It keeps its version epoch, as its
+     * contents have not changed yet.
+     * @return the frame, or null if there is no such block.
+     */
+    private Block frame(int blockId)
+    {
+	Block block = blocks.get(blockId);
+	if(block == null && coldBlocks.containsKey(blockId)) {
+	    block = coldFrame(blockId);
+	    coldBlocks.remove(blockId);
+	    blocks.put(blockId, block);
+	}
+	return block;
+    }
+
+    /**
+     * Gets the frame of a block that is about to be modified, copying it to
+     * a new version first if an open snapshot can see the current one.
+     */
+    private Block writableFrame(int blockId)
+    {
+	Block block = frame(blockId);
+	long version = blockEpochs.get(blockId);
+
+	boolean shared = false;
+	for(Snapshot snapshot : activeSnapshots) {
+	    if(snapshot.epoch > version) {
+		shared = true;
+		break;
+	    }
+	}
+	if(!shared) {
+	    return block;
+	}
+
+	Block copy = takeFrame(block.data.length);
+	System.arraycopy(block.data, 0, copy.data, 0, block.data.length);
+	blocks.put(blockId, copy);
+	blockEpochs.put(blockId, epoch);
+
+	List<RetiredBlock> versions = retiredBlocks.get(blockId);
+	if(versions == null) {
+	    versions = new ArrayList<RetiredBlock>();
+	    retiredBlocks.put(blockId, versions);
+	}
+	versions.add(new RetiredBlock(version, epoch, block));
+	numRetiredBlocks++;
+	return copy;
+    }
+
+    /**
+     * Returns to the frame pool every retired version that no open snapshot
+     * can see, that is, those retired before the oldest open snapshot was
+     * opened.
+     */
+    private void reclaim()
+    {
+	long oldest = Long.MAX_VALUE;
+	for(Snapshot snapshot : activeSnapshots) {
+	    oldest = Math.min(oldest, snapshot.epoch);
+	}
+	Iterator<List<RetiredBlock>> lists = retiredBlocks.values().iterator();
+	while(lists.hasNext()) {
+	    List<RetiredBlock> versions = lists.next();
+	    Iterator<RetiredBlock> it = versions.iterator();
+	    while(it.hasNext()) {
+		RetiredBlock retired = it.next();
+		if(retired.retiredEpoch < oldest) {
+		    freeFrames.add(retired.block);
+		    it.remove();
+		    numRetiredBlocks--;
+		}
+	    }
+	    if(versions.isEmpty()) {
+		lists.remove();
+	    }
+	}
+    }
+}
@@ -0,0 +1,422 @@
+package slottedblock;
+
+import java.nio.*;
+import java.util.*;
+
+/**
+ * Slotted file block that also keeps its records ordered by a key extracted
+ * from each record. The key is the int stored at a fixed int position within
+ * the record. This is meant for index leaf pages and clustered tables.
+ *
+ * As in SlottedBlock, a record keeps its slot number (and so its RID) for as
+ * long as it is in the block, and records are packed from the end of the
+ * block. Key order is kept in a separate rank column: each slot entry has a
+ * third int, and the n-th of these holds the slot number of the record with
+ * the n-th smallest key, ties broken by slot number. Since there are never
+ * more records than slots, the column always fits. Inserting or deleting a
+ * record only shifts ints in this column, never record bytes, and lookups
+ * (including finding a record's own rank) are a binary search over it.
+ *
+ * The block layout differs from SlottedBlock's (slot entries are three ints,
+ * and the header also holds the slot count and where the records start), so
+ * this class does not extend it.
+ */
+public class KeyedSlottedBlock
+{
+    public static class BadKeyException extends RuntimeException {};
+
+    /**
+     * Int positions of the header fields.
+     */
+    private static final int NUM_RECORDS = 0;
+    private static final int PREV_BLOCK = 1;
+    private static final int BLOCK_ID = 2;
+    private static final int NEXT_BLOCK = 3;
+    private static final int NUM_SLOTS = 4;
+    private static final int RECORD_START = 5;
+    private static final int SLOT_ARRAY = 6;
+
+    /**
+     * Ints per slot entry: offset (0 if the slot is empty), length in bytes,
+     * and one entry of the rank column.
+     */
+    private static final int SLOT_SIZE = 3;
+
+    private byte[] data;
+    private IntBuffer intBuffer;
+    private int intBufferLength;
+
+    /**
+     * Int position within each record at which the key is stored.
+     */
+    private int keyIndex;
+
+    /**
+     * Constructs a keyed slotted block whose key is the first int of each
+     * record.
+     * @param block the block to be wrapped.
+     */
+    public KeyedSlottedBlock(Block block)
+    {
+        this(block, 0);
+    }
+
+    /**
+     * Constructs a keyed slotted block by wrapping around a block object
+     * already provided.
+     * @param block the block to be wrapped.
+     * @param keyIndex the int position within each record holding the key.
+     */
+    public KeyedSlottedBlock(Block block, int keyIndex)
+    {
+        data = block.data;
+        intBuffer = (ByteBuffer.wrap(data)).asIntBuffer();
+        intBufferLength = data.length / SlottedBlock.SIZE_OF_INT;
+        this.keyIndex = keyIndex;
+    }
+
+    /**
+     * Initializes values in the block as necessary.
+     */
+    public void init()
+    {
+	intBuffer.put(NUM_RECORDS, 0);
+	intBuffer.put(PREV_BLOCK, SlottedBlock.INVALID_BLOCK);
+	intBuffer.put(BLOCK_ID, SlottedBlock.INVALID_BLOCK);
+	intBuffer.put(NEXT_BLOCK, SlottedBlock.INVALID_BLOCK);
+	intBuffer.put(NUM_SLOTS, 0);
+	intBuffer.put(RECORD_START, intBufferLength);
+    }
+
+    /**
+     * Sets the block id.
+     * @param blockId the new block id.
+     */
+    public void setBlockId(int blockId)
+    {
+	intBuffer.put(BLOCK_ID, blockId);
+    }
+
+    /**
+     * Gets the block id.
+     * @return the block id.
+     */
+    public int getBlockId()
+    {
+        return intBuffer.get(BLOCK_ID);
+    }
+
+    /**
+     * Sets the next block id.
+     * @param blockId the next block id.
+     */
+    public void setNextBlockId(int blockId)
+    {
+	intBuffer.put(NEXT_BLOCK, blockId);
+    }
+
+    /**
+     * Gets the next block id.
+     * @return the next block id.
+     */
+    public int getNextBlockId()
+    {
+        return intBuffer.get(NEXT_BLOCK);
+    }
+
+    /**
+     * Sets the previous block id.
+     * @param blockId the previous block id.
+     */
+    public void setPrevBlockId(int blockId)
+    {
+	intBuffer.put(PREV_BLOCK, blockId);
+    }
+
+    /**
+     * Gets the previous block id.
+     * @return the previous block id.
+     */
+    public int getPrevBlockId()
+    {
+        return intBuffer.get(PREV_BLOCK);
+    }
+
+    /**
+     * Determines how much space, in bytes, is available for the data of a
+     * new record, leaving out the room a new slot entry would take if there
+     * is no empty slot to reuse.
+     * @return the amount of available space in bytes
+     */
+    public int getAvailableSpace()
+    {
+	int numSlots = intBuffer.get(NUM_SLOTS);
+	int free = intBuffer.get(RECORD_START) - (SLOT_ARRAY + numSlots*SLOT_SIZE);
+	if(intBuffer.get(NUM_RECORDS) == numSlots) {
+	    free -= SLOT_SIZE;
+	}
+	return Math.max(free, 0)*SlottedBlock.SIZE_OF_INT;
+    }
+
+    /**
+     * Dumps out to the screen the records of the block in key order. (This
+     * method merely exists for debugging and testing purposes.)
+     */
+    public void dumpBlock()
+    {
+	System.out.println("Number of entries: " + intBuffer.get(NUM_RECORDS));
+	System.out.println("===========contents===========");
+	for(RID rid = firstRecord(); rid != null; rid = nextRecord(rid)) {
+	    int offset = offsetOf(rid.slotNum);
+	    int length = intBuffer.get(slotPos(rid.slotNum) + 1);
+	    System.out.println("Slot Array Item #: " + rid.slotNum + " | " + "offset: " + offset*4
+			       + " | " + "Length: " + length + " | " + "Key: " + keyAt(rid.slotNum));
+	    System.out.print("Content:           ");
+	    for (int i = offset; i < offset + length/4; i++) {
+		System.out.print(intBuffer.get(i) + " | ");
+	    }
+	    System.out.println("\n ---------------------------");
+	}
+	System.out.println("Free space starts at byte "
+			   + (SLOT_ARRAY + intBuffer.get(NUM_SLOTS)*SLOT_SIZE)*4);
+    }
+
+    /**
+     * Inserts a new record into the block, placing it in key order. Records
+     * with equal keys are ordered by slot number.
+     * @param record the record to be inserted. A copy of the data is
+     * placed in the block.
+     * @return the RID of the new record
+     * @throws BlockFullException if there is not enough room for the
+     * record in the block.
+     * @throws BadKeyException if the record is too short to hold a key.
+     */
+    public RID insertRecord(byte[] record)
+    {
+	if(record.length < (keyIndex + 1)*SlottedBlock.SIZE_OF_INT) {
+	    throw new BadKeyException();
+	}
+	if (this.getAvailableSpace() < record.length) {
+	    throw new SlottedBlock.BlockFullException();
+	}
+	int index = intBuffer.get(RECORD_START) - record.length/SlottedBlock.SIZE_OF_INT;
+	IntBuffer inputData = (ByteBuffer.wrap(record)).asIntBuffer();
+	for(int i = 0; i < record.length/SlottedBlock.SIZE_OF_INT; i++) {
+	    intBuffer.put(index+i, inputData.get(i));
+	}
+	intBuffer.put(RECORD_START, index);
+
+	//reuse an empty slot if there is one, otherwise extend the slot array.
+	int numRecords = intBuffer.get(NUM_RECORDS);
+	int numSlots = intBuffer.get(NUM_SLOTS);
+	int slotNum = numSlots + 1;
+	if(numRecords < numSlots) {
+	    for(slotNum = 1; offsetOf(slotNum) != 0; slotNum++)
+		;
+	} else {
+	    intBuffer.put(NUM_SLOTS, slotNum);
+	}
+	intBuffer.put(slotPos(slotNum), index);
+	intBuffer.put(slotPos(slotNum) + 1, record.length);
+
+	//shift the ranks after the insertion point up by one.
+	int rank = lowerBound(inputData.get(keyIndex), slotNum);
+	for(int r = numRecords; r >= rank; r--) {
+	    intBuffer.put(rankPos(r + 1), intBuffer.get(rankPos(r)));
+	}
+	intBuffer.put(rankPos(rank), slotNum);
+	intBuffer.put(NUM_RECORDS, numRecords + 1);
+
+	return new RID(this.getBlockId(), slotNum);
+    }
+
+    /**
+     * Deletes the record with the given RID from the block, compacting the
+     * hole left in the record area. As in SlottedBlock, the slot is left
+     * empty so that the RIDs of the other records do not change, and the
+     * slot array only shrinks when its last slots are empty.
+     * @param rid the RID to be deleted.
+     * @return true if successful, false if the rid is actually not
+     * found in the block.
+     */
+    public boolean deleteRecord(RID rid)
+    {
+	int slotNum = rid.slotNum;
+	if(slotNum < 1 || slotNum > intBuffer.get(NUM_SLOTS) || offsetOf(slotNum) == 0) {
+	    return false;
+	}
+	int offset = offsetOf(slotNum);
+	int length = intBuffer.get(slotPos(slotNum) + 1)/SlottedBlock.SIZE_OF_INT;
+	int numRecords = intBuffer.get(NUM_RECORDS);
+
+	//remove the slot from the rank column.
+	for(int r = rankOf(slotNum); r < numRecords; r++) {
+	    intBuffer.put(rankPos(r), intBuffer.get(rankPos(r + 1)));
+	}
+	intBuffer.put(NUM_RECORDS, numRecords - 1);
+
+	//compact the data: everything below the deleted record moves up by its length.
+	int recordStart = intBuffer.get(RECORD_START);
+	for(int dataIndex = offset - 1; dataIndex >= recordStart; dataIndex--) {
+	    intBuffer.put(dataIndex + length, intBuffer.get(dataIndex));
+	}
+	intBuffer.put(RECORD_START, recordStart + length);
+	intBuffer.put(slotPos(slotNum), 0);
+	intBuffer.put(slotPos(slotNum) + 1, 0);
+	int numSlots = intBuffer.get(NUM_SLOTS);
+	for(int slot = 1; slot <= numSlots; slot++) {
+	    if(offsetOf(slot) != 0 && offsetOf(slot) < offset) {
+		intBuffer.put(slotPos(slot), offsetOf(slot) + length);
+	    }
+	}
+
+	//compact the slot array if its last slots are empty.
+	while(numSlots > 0 && offsetOf(numSlots) == 0) {
+	    numSlots--;
+	}
+	intBuffer.put(NUM_SLOTS, numSlots);
+	return true;
+    }
+
+    /**
+     * Returns RID of the record with the smallest key.
+     * @return the RID of the first record in key order. Returns null
+     * if the block is empty.
+     */
+    public RID firstRecord()
+    {
+	if(this.empty()) {
+	    return null;
+	}
+	return new RID(this.getBlockId(), intBuffer.get(rankPos(1)));
+    }
+
+    /**
+     * Returns RID of the next record in key order.
+     * @param curRid an RID
+     * @return the RID following curRid in key order. Returns null if
+     * curRid is the last record in the block.
+     * @throws BadSlotIdException if the slot id within curRid is invalid
+     */
+    public RID nextRecord(RID curRid)
+    {
+	checkSlot(curRid.slotNum);
+	int rank = rankOf(curRid.slotNum);
+	if(rank == intBuffer.get(NUM_RECORDS)) {
+	    return null;
+	}
+	return new RID(this.getBlockId(), intBuffer.get(rankPos(rank + 1)));
+    }
+
+    /**
+     * Returns the record associated with an RID.
+     * @param rid the rid of interest
+     * @return a byte array containing a copy of the record.
+     * @throws BadSlotIdException if the slot id within rid is invalid
+     */
+    public byte[] getRecord(RID rid)
+    {
+	checkSlot(rid.slotNum);
+	byte[] returnArray = new byte[intBuffer.get(slotPos(rid.slotNum) + 1)];
+	System.arraycopy(data, offsetOf(rid.slotNum)*SlottedBlock.SIZE_OF_INT,
+			 returnArray, 0, returnArray.length);
+	return returnArray;
+    }
+
+    /**
+     * Gets the key of a record.
+     * @param rid the rid of interest
+     * @return the key stored in the record.
+     * @throws BadSlotIdException if the slot id within rid is invalid
+     */
+    public int getKey(RID rid)
+    {
+	checkSlot(rid.slotNum);
+	return keyAt(rid.slotNum);
+    }
+
+    /**
+     * Finds a record by key using binary search over the rank column. If
+     * more than one record has the key, the first of them in key order is
+     * returned.
+     * @param key the key to look for.
+     * @return the RID of a record with the given key, or null if there is no
+     * such record in the block.
+     */
+    public RID findByKey(int key)
+    {
+	int rank = lowerBound(key, Integer.MIN_VALUE);
+	if(rank > intBuffer.get(NUM_RECORDS) || keyAtRank(rank) != key) {
+	    return null;
+	}
+	return new RID(this.getBlockId(), intBuffer.get(rankPos(rank)));
+    }
+
+    /**
+     * Whether or not the block is empty.
+     * @return true if the block is empty, false otherwise.
+     */
+    public boolean empty()
+    {
+	return intBuffer.get(NUM_RECORDS) == 0;
+    }
+
+    private void checkSlot(int slotNum)
+    {
+	if(slotNum < 1 || slotNum > intBuffer.get(NUM_SLOTS) || offsetOf(slotNum) == 0) {
+	    throw new SlottedBlock.BadSlotIdException();
+	}
+    }
+
+    /**
+     * Finds the rank of a (valid) slot.
+     */
+    private int rankOf(int slotNum)
+    {
+	return lowerBound(keyAt(slotNum), slotNum);
+    }
+
+    /**
+     * First rank whose (key, slot number) is not less than the given pair.
+     */
+    private int lowerBound(int key, int slotNum)
+    {
+	int low = 1;
+	int high = intBuffer.get(NUM_RECORDS) + 1;
+	while(low < high) {
+	    int mid = (low + high) >>> 1;
+	    int midKey = keyAtRank(mid);
+	    if(midKey < key || (midKey == key && intBuffer.get(rankPos(mid)) < slotNum)) {
+		low = mid + 1;
+	    } else {
+		high = mid;
+	    }
+	}
+	return low;
+    }
+
+    private int slotPos(int slotNum)
+    {
+	return SLOT_ARRAY + (slotNum - 1)*SLOT_SIZE;
+    }
+
+    private int rankPos(int rank)
+    {
+	return SLOT_ARRAY + (rank - 1)*SLOT_SIZE + 2;
+    }
+
+    private int offsetOf(int slotNum)
+    {
+	return intBuffer.get(slotPos(slotNum));
+    }
+
+    private int keyAt(int slotNum)
+    {
+	return intBuffer.get(offsetOf(slotNum) + keyIndex);
+    }
+
+    private int keyAtRank(int rank)
+    {
+	return keyAt(intBuffer.get(rankPos(rank)));
+    }
+}
@@ -0,0 +1,139 @@
+package slottedblock;
+
+import java.util.*;
+
+/**
+ * Small LZ77 codec in the style of LZ4, used to compress cold blocks. The
+ * compressed form is a series of sequences, each made of a token byte (high
+ * nibble: number of literals, low nibble: match length minus 4), the
+ * literals, a two byte little endian offset back into the output, and extra
+ * length bytes when a nibble is 15. The last sequence has literals only.
+ */
+public class LZCodec
+{
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 65535;
+    private static final int HASH_LOG = 12;
+
+    /**
+     * Compresses an array.
+     * @param src the bytes to compress.
+     * @return the compressed bytes, exactly as long as needed.
+     */
+    public static byte[] compress(byte[] src)
+    {
+	byte[] dest = new byte[src.length + src.length/255 + 16];
+	int[] table = new int[1 << HASH_LOG];
+	Arrays.fill(table, -1);
+
+	int ip = 0;
+	int anchor = 0;
+	int op = 0;
+	while(ip + MIN_MATCH <= src.length) {
+	    int h = hash(readInt(src, ip));
+	    int ref = table[h];
+	    table[h] = ip;
+	    if(ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != readInt(src, ip)) {
+		ip++;
+		continue;
+	    }
+	    int matchLength = MIN_MATCH;
+	    while(ip + matchLength < src.length && src[ref + matchLength] == src[ip + matchLength]) {
+		matchLength++;
+	    }
+	    int tokenPos = op;
+	    op = writeSequence(src, anchor, ip - anchor, dest, op);
+	    dest[op++] = (byte) (ip - ref);
+	    dest[op++] = (byte) ((ip - ref) >>> 8);
+	    if(matchLength - MIN_MATCH >= 15) {
+		op = writeLength(matchLength - MIN_MATCH - 15, dest, op);
+	    }
+	    //the token was written along with the literals; fill in the match nibble.
+	    dest[tokenPos] |= (byte) Math.min(matchLength - MIN_MATCH, 15);
+	    ip += matchLength;
+	    anchor = ip;
+	}
+	op = writeSequence(src, anchor, src.length - anchor, dest, op);
+	return Arrays.copyOf(dest, op);
+    }
+
+    /**
+     * Decompresses into an array.
+     * @param src the compressed bytes.
+     * @param dest the array to decompress into, which must be large enough.
+     * @return the number of bytes written to dest.
+     */
+    public static int decompress(byte[] src, byte[] dest)
+    {
+	int ip = 0;
+	int op = 0;
+	while(ip < src.length) {
+	    int token = src[ip++] & 0xff;
+
+	    int literals = token >>> 4;
+	    if(literals == 15) {
+		int b;
+		do {
+		    b = src[ip++] & 0xff;
+		    literals += b;
+		} while(b == 255);
+	    }
+	    System.arraycopy(src, ip, dest, op, literals);
+	    ip += literals;
+	    op += literals;
+	    if(ip >= src.length) {
+		break;
+	    }
+
+	    int offset = (src[ip] & 0xff) | ((src[ip + 1] & 0xff) << 8);
+	    ip += 2;
+	    int matchLength = token & 0x0f;
+	    if(matchLength == 15) {
+		int b;
+		do {
+		    b = src[ip++] & 0xff;
+		    matchLength += b;
+		} while(b == 255);
+	    }
+	    matchLength += MIN_MATCH;
+
+	    //byte by byte, since a match may overlap the bytes it produces.
+	    for(int i = 0; i < matchLength; i++) {
+		dest[op] = dest[op - offset];
+		op++;
+	    }
+	}
+	return op;
+    }
+
+    private static int writeSequence(byte[] src, int start, int length, byte[] dest, int op)
+    {
+	dest[op++] = (byte) (Math.min(length, 15) << 4);
+	if(length >= 15) {
+	    op = writeLength(length - 15, dest, op);
+	}
+	System.arraycopy(src, start, dest, op, length);
+	return op + length;
+    }
+
+    private static int writeLength(int length, byte[] dest, int op)
+    {
+	while(length >= 255) {
+	    dest[op++] = (byte) 255;
+	    length -= 255;
+	}
+	dest[op++] = (byte) length;
+	return op;
+    }
+
+    private static int readInt(byte[] b, int i)
+    {
+	return (b[i] & 0xff) | ((b[i + 1] & 0xff) << 8)
+	    | ((b[i + 2] & 0xff) << 16) | ((b[i + 3] & 0xff) << 24);
+    }
+
+    private static int hash(int value)
+    {
+	return (value * -1640531535) >>> (32 - HASH_LOG);
+    }
+}
@@ -1,3 +1,5 @@
+package slottedblock;
+
 /**
  * Record identifier. Identifies a record id within a heap file. Contains a block
  * id and a slot number.
@@ -1,3 +1,5 @@
+package slottedblock;
+
 import java.nio.*;
 import java.util.*;
 
@@ -118,6 +120,15 @@ public class SlottedBlock
         return intBuffer.get(1);
     }
 
+    /**
+     * Gets the size of the wrapped block.
+     * @return the block size in bytes.
+     */
+    public int getBlockSize()
+    {
+        return data.length;
+    }
+
     /**
      * Determines how much space, in bytes, is actually available in the block,
      * which depends on whether or not a new slot in the slot array is
@@ -208,7 +219,8 @@ public class SlottedBlock
 	int curIndex = 4;
 
 	while (intBuffer.get(curIndex) != -1) {
-	    if(intBuffer.get(curIndex) < smallestIndex) {
+	    //skip empty slots, their offset is 0.
+	    if(intBuffer.get(curIndex) > 0 && intBuffer.get(curIndex) < smallestIndex) {
 		smallestIndex = intBuffer.get(curIndex);
 	    }
 	    curIndex += 2;
@@ -274,7 +286,8 @@ public class SlottedBlock
 	//calculate the "length" of the slot array. (two indices makes one slot in the slot array)
 	while(intBuffer.get(slotIndex) != -1) {
 	    slotArrayLength += 1;
-	    if(intBuffer.get(slotIndex) < end_of_free_space && intBuffer.get(slotIndex) > 0) {
+	    //end_of_free_space is one below the smallest offset so far, hence <=.
+	    if(intBuffer.get(slotIndex) <= end_of_free_space && intBuffer.get(slotIndex) > 0) {
 		end_of_free_space = intBuffer.get(slotIndex) - 1;
 	    }
 	    slotIndex += 2;
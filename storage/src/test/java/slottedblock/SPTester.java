@@ -0,0 +1,582 @@
+package slottedblock;
+
+import java.io.*;
+import java.util.*;
+import java.nio.*;
+import java.util.Random;
+
+public class SPTester
+{
+    public static interface Testable
+    {
+        void test() throws Exception;
+    }
+    
+    public static class TestFailedException extends RuntimeException
+    {
+        public TestFailedException(String explanation)
+        {
+            super(explanation);
+        }
+    }
+
+    public static class Test1 implements Testable
+    {
+        public void test() throws Exception
+        {
+            SlottedBlock sp = new SlottedBlock(new Block());
+            sp.init();
+            
+            System.out.println("--- Test 1: Block Initialization Checks ---");
+            sp.setBlockId(7);
+            sp.setNextBlockId(8);
+            sp.setPrevBlockId(SlottedBlock.INVALID_BLOCK);
+            
+            System.out.println
+                ("Current Block No.: " + sp.getBlockId() + ", " +
+                 "Next Block Id: " + sp.getNextBlockId() + ", " +
+                 "Prev Block Id: " + sp.getPrevBlockId() + ", " +
+                 "Available Space: " + sp.getAvailableSpace());
+        
+            if (!sp.empty())
+                throw new TestFailedException("Block should be empty.");
+
+            System.out.println("Block Empty as expected.");
+            sp.dumpBlock();
+        }
+    }
+
+
+    public static class Test2 implements Testable
+    {
+        public void test() throws Exception
+        {
+            int buffSize = 20;
+            int limit = 20;
+            byte[] tmpBuf = new byte[buffSize];
+	    /* code to test if dump block works.
+	    int count = 0;
+	    for(int i = 0; i < 5; i++) {
+		System.arraycopy(ByteBuffer.allocate(4).putInt(i).array(), 0, tmpBuf, count, 4);
+		count += 4;
+	    }
+	    
+	    */
+            SlottedBlock sp = new SlottedBlock(new Block());
+            sp.init();
+            sp.setBlockId(7);
+            sp.setNextBlockId(8);
+            sp.setPrevBlockId(SlottedBlock.INVALID_BLOCK);
+            System.out.println("--- Test 2: Insert and traversal of " +
+                               "records ---");
+            for (int i=0; i < limit; i++)
+            {
+                RID rid = sp.insertRecord(tmpBuf);
+                System.out.println("Inserted record, RID " + rid.blockId +
+                                   ", " + rid.slotNum);
+                rid = sp.nextRecord(rid);
+            }
+
+            if (sp.empty())
+                throw new TestFailedException("The block cannot be empty");
+            
+            RID rid = sp.firstRecord();
+            while (rid != null)
+            {
+                tmpBuf = sp.getRecord(rid); 
+                System.out.println("Retrieved record, RID " + rid.blockId +
+                                   ", " + rid.slotNum);
+                rid = sp.nextRecord(rid);
+            }
+	    //sp.dumpBlock();
+        }
+    }
+
+    public static class Test3 implements Testable
+    {
+	public void test() throws Exception
+	{
+            int buffSize = 20;
+            int limit = 20;
+            byte[] tmpBuf = new byte[buffSize];
+
+	    /* code to test if dump block works. */
+	    
+	    int count = 0;
+	    for(int i = 0; i < 5; i++) {
+		System.arraycopy(ByteBuffer.allocate(4).putInt(i).array(), 0, tmpBuf, count, 4);
+		count += 4;
+	    }
+	    
+            SlottedBlock sp = new SlottedBlock(new Block());
+            sp.init();
+            sp.setBlockId(7);
+            sp.setNextBlockId(8);
+            sp.setPrevBlockId(SlottedBlock.INVALID_BLOCK);
+            System.out.println("--- Test 3: Insert, traversal and deletion of " +
+                               "records ---");
+            for (int i=0; i < limit; i++)
+            {
+                RID rid = sp.insertRecord(tmpBuf);
+                System.out.println("Inserted record, RID " + rid.blockId +
+                                   ", " + rid.slotNum);
+                rid = sp.nextRecord(rid);
+            }
+
+            if (sp.empty())
+                throw new TestFailedException("The block cannot be empty");
+            
+            RID rid = sp.firstRecord();
+            while (rid != null)
+            {
+                tmpBuf = sp.getRecord(rid); 
+                System.out.println("Retrieved record, RID " + rid.blockId +
+                                   ", " + rid.slotNum);
+                rid = sp.nextRecord(rid);
+            }
+	    sp.dumpBlock();
+
+	    System.out.println("--- delete starts ---");
+	    
+	    //delete last record
+	    RID rid_delete = new RID(7, 20);
+	    boolean deleted = sp.deleteRecord(rid_delete);
+	    if (deleted) {
+		System.out.println("Record " + rid_delete.slotNum + " was successfully deleted.");
+	    }
+
+	    //delete items that are not last record to last record (to see if compacting slot array works).
+	    rid_delete = new RID(7, 17);
+	    deleted = sp.deleteRecord(rid_delete);
+	    if (deleted) {
+		System.out.println("Record " + rid_delete.slotNum + " was successfully deleted.");
+	    }
+	    rid_delete = new RID(7, 18);
+	    deleted = sp.deleteRecord(rid_delete);
+	    if (deleted) {
+		System.out.println("Record " + rid_delete.slotNum + " was successfully deleted.");
+	    }
+	    rid_delete = new RID(7, 19);
+	    deleted = sp.deleteRecord(rid_delete);
+	    if (deleted) {
+		System.out.println("Record " + rid_delete.slotNum + " was successfully deleted.");
+	    }
+	    	    
+	    sp.dumpBlock();
+
+	    //try deleting items that don't exist/that are already deleted.
+	    rid_delete = new RID(7, 19);
+	    deleted = sp.deleteRecord(rid_delete);
+	    if (deleted) {
+		System.out.println("Record " + rid_delete.slotNum + " was successfully deleted.");
+	    }
+
+	    rid_delete = new RID(7, 14);
+	    deleted = sp.deleteRecord(rid_delete);
+	    if (deleted) {
+		System.out.println("Record " + rid_delete.slotNum + " was successfully deleted.");
+	    }
+
+	    rid_delete = new RID(7, 14);
+	    deleted = sp.deleteRecord(rid_delete);
+	    if (deleted) {
+		System.out.println("Record " + rid_delete.slotNum + " was successfully deleted.");
+	    }
+	    
+        }
+    }
+    
+public static class Test4 implements Testable
+    {
+	public void test() throws Exception
+	{
+            int limit = 20;
+	    
+            SlottedBlock sp = new SlottedBlock(new Block());
+            sp.init();
+            sp.setBlockId(7);
+            sp.setNextBlockId(8);
+            sp.setPrevBlockId(SlottedBlock.INVALID_BLOCK);
+	    /* code to test if dump block works. */
+	    System.out.println("--- Test 4: Insert, traversal and deletion of " +
+                               "variable length records ---");
+	    
+	    for(int i = 0; i < limit; i++) {
+		byte[] tmpBuf = new byte[(i+1)*4];
+                RID rid = sp.insertRecord(tmpBuf);
+                System.out.println("Inserted record, RID " + rid.blockId +
+                                   ", " + rid.slotNum);
+                rid = sp.nextRecord(rid);
+		
+	    }
+	    sp.dumpBlock();
+
+            if (sp.empty())
+                throw new TestFailedException("The block cannot be empty");
+
+	    System.out.println("--- delete starts ---");
+	    
+	    //delete last record
+	    RID rid_delete = new RID(7, 20);
+	    boolean deleted = sp.deleteRecord(rid_delete);
+	    if (deleted) {
+		System.out.println("Record " + rid_delete.slotNum + " was successfully deleted.");
+	    }
+
+	    //delete items that are not last record to last record (to see if compacting slot array works).
+	    rid_delete = new RID(7, 17);
+	    deleted = sp.deleteRecord(rid_delete);
+	    if (deleted) {
+		System.out.println("Record " + rid_delete.slotNum + " was successfully deleted.");
+	    }
+	    rid_delete = new RID(7, 18);
+	    deleted = sp.deleteRecord(rid_delete);
+	    if (deleted) {
+		System.out.println("Record " + rid_delete.slotNum + " was successfully deleted.");
+	    }
+	    rid_delete = new RID(7, 19);
+	    deleted = sp.deleteRecord(rid_delete);
+	    if (deleted) {
+		System.out.println("Record " + rid_delete.slotNum + " was successfully deleted.");
+	    }
+	    	    
+	    sp.dumpBlock();
+
+	    //try deleting items that don't exist/that are already deleted.
+	    rid_delete = new RID(7, 19);
+	    deleted = sp.deleteRecord(rid_delete);
+	    if (deleted) {
+		System.out.println("Record " + rid_delete.slotNum + " was successfully deleted.");
+	    }
+
+	    rid_delete = new RID(7, 14);
+	    deleted = sp.deleteRecord(rid_delete);
+	    if (deleted) {
+		System.out.println("Record " + rid_delete.slotNum + " was successfully deleted.");
+	    }
+
+	    rid_delete = new RID(7, 14);
+	    deleted = sp.deleteRecord(rid_delete);
+	    if (deleted) {
+		System.out.println("Record " + rid_delete.slotNum + " was successfully deleted.");
+		}
+	    sp.dumpBlock();
+	    
+	    }
+    }
+
+
+    public static class Test5 implements Testable
+    {
+	public void test() throws Exception
+	{
+	    int[] keys = {42, 7, 19, 7, 100, 3, 55};
+	    RID[] rids = new RID[keys.length];
+
+            KeyedSlottedBlock sp = new KeyedSlottedBlock(new Block());
+            sp.init();
+            sp.setBlockId(7);
+            sp.setNextBlockId(8);
+            sp.setPrevBlockId(SlottedBlock.INVALID_BLOCK);
+	    System.out.println("--- Test 5: Ordered insert, key lookup and " +
+                               "deletion in a keyed block ---");
+
+	    for(int i = 0; i < keys.length; i++) {
+		byte[] tmpBuf = ByteBuffer.allocate(8).putInt(keys[i]).putInt(i).array();
+                RID rid = sp.insertRecord(tmpBuf);
+                System.out.println("Inserted key " + keys[i] + ", RID " +
+                                   rid.blockId + ", " + rid.slotNum);
+		rids[i] = rid;
+	    }
+
+	    //iteration must follow key order.
+	    int prevKey = Integer.MIN_VALUE;
+            RID rid = sp.firstRecord();
+            while (rid != null)
+            {
+		int key = sp.getKey(rid);
+		if (key < prevKey)
+		    throw new TestFailedException("Slots are out of key order.");
+		prevKey = key;
+                rid = sp.nextRecord(rid);
+            }
+
+	    for(int i = 0; i < keys.length; i++) {
+		rid = sp.findByKey(keys[i]);
+		if (rid == null || sp.getKey(rid) != keys[i])
+		    throw new TestFailedException("Key " + keys[i] + " not found.");
+	    }
+	    if (sp.findByKey(8) != null)
+		throw new TestFailedException("Key 8 should not be found.");
+
+	    System.out.println("--- delete starts ---");
+	    sp.deleteRecord(sp.findByKey(19));
+	    sp.deleteRecord(sp.findByKey(3));
+	    if (sp.findByKey(19) != null || sp.findByKey(3) != null)
+		throw new TestFailedException("Deleted keys are still found.");
+
+	    rid = sp.findByKey(55);
+	    if (ByteBuffer.wrap(sp.getRecord(rid)).getInt(4) != 6)
+		throw new TestFailedException("Record for key 55 was corrupted.");
+
+	    //RIDs must not change when smaller keys come and go.
+	    sp.insertRecord(ByteBuffer.allocate(8).putInt(1).putInt(7).array());
+	    for(int i = 0; i < keys.length; i++) {
+		if (keys[i] == 19 || keys[i] == 3)
+		    continue;
+		ByteBuffer record = ByteBuffer.wrap(sp.getRecord(rids[i]));
+		if (record.getInt() != keys[i] || record.getInt() != i)
+		    throw new TestFailedException("RID of key " + keys[i] + " changed.");
+	    }
+	    sp.dumpBlock();
+	}
+    }
+
+
+    public static class Test6 implements Testable
+    {
+	public void test() throws Exception
+	{
+	    int limit = 300;
+	    final Map<Integer, RID> rids = new HashMap<Integer, RID>();
+
+	    HeapFile hf = new HeapFile();
+	    System.out.println("--- Test 6: Vacuum of sparse blocks after " +
+                               "heavy deletes ---");
+
+	    for(int i = 0; i < limit; i++) {
+		//mixed lengths, so that some records sit only one int apart.
+		byte[] tmpBuf = ByteBuffer.allocate(4*(1 + i % 6)).putInt(i).array();
+		rids.put(i, hf.insertRecord(tmpBuf));
+	    }
+	    int blocksBefore = hf.getNumBlocks();
+
+	    //keep only every tenth record.
+	    for(int i = 0; i < limit; i++) {
+		if (i % 10 != 0) {
+		    hf.deleteRecord(rids.remove(i));
+		}
+	    }
+
+	    //keep the rid map up to date as records move, as an index would.
+	    final Map<String, Integer> keyByRid = new HashMap<String, Integer>();
+	    for (Map.Entry<Integer, RID> e : rids.entrySet())
+		keyByRid.put(e.getValue().blockId + "," + e.getValue().slotNum, e.getKey());
+
+	    BlockVacuum vacuum = new BlockVacuum(hf, 0.5, 0, new HeapFile.RecordMoveListener() {
+		    public void recordMoved(RID oldRid, RID newRid) {
+			Integer key = keyByRid.remove(oldRid.blockId + "," + oldRid.slotNum);
+			keyByRid.put(newRid.blockId + "," + newRid.slotNum, key);
+			rids.put(key, newRid);
+		    }
+		});
+	    while (vacuum.vacuumStep())
+		;
+
+	    System.out.println("Blocks before vacuum: " + blocksBefore +
+			       ", after: " + hf.getNumBlocks() +
+			       ", free: " + hf.getNumFreeBlocks());
+	    if (hf.getNumBlocks() >= blocksBefore)
+		throw new TestFailedException("Vacuum did not free any block.");
+
+	    for (Map.Entry<Integer, RID> e : rids.entrySet()) {
+		int value = ByteBuffer.wrap(hf.getRecord(e.getValue())).getInt();
+		if (value != e.getKey())
+		    throw new TestFailedException("Record " + e.getKey() + " was lost.");
+	    }
+
+	    //the chain must still reach every remaining record.
+	    int count = 0;
+	    int blockId = hf.getFirstBlockId();
+	    while (blockId != SlottedBlock.INVALID_BLOCK) {
+		SlottedBlock sp = hf.readBlock(blockId);
+		for (RID rid = sp.firstRecord(); rid != null; rid = sp.nextRecord(rid))
+		    count++;
+		blockId = sp.getNextBlockId();
+	    }
+	    if (count != rids.size())
+		throw new TestFailedException("Scan found " + count + " records, expected " + rids.size());
+	}
+    }
+
+    public static class Test7 implements Testable
+    {
+	public void test() throws Exception
+	{
+	    int limit = 300;
+	    List<RID> rids = new ArrayList<RID>();
+
+	    System.out.println("--- Test 7: Compression of cold blocks ---");
+
+	    //round trip on data that does not compress.
+	    Random random = new Random(7);
+	    byte[] noise = new byte[Block.BLOCKSIZE];
+	    random.nextBytes(noise);
+	    byte[] decoded = new byte[Block.BLOCKSIZE];
+	    if (LZCodec.decompress(LZCodec.compress(noise), decoded) != noise.length
+		|| !Arrays.equals(noise, decoded))
+		throw new TestFailedException("Codec round trip failed.");
+
+	    HeapFile hf = new HeapFile();
+	    for(int i = 0; i < limit; i++) {
+		byte[] tmpBuf = ByteBuffer.allocate(20).putInt(i).putInt(i % 3).array();
+		rids.add(hf.insertRecord(tmpBuf));
+	    }
+	    int numBlocks = hf.getNumBlocks();
+
+	    hf.compressColdBlocks(0);
+	    System.out.println("Blocks: " + numBlocks + ", cold: " + hf.getNumColdBlocks() +
+			       ", cold bytes: " + hf.getColdBytes() +
+			       " (uncompressed " + numBlocks*Block.BLOCKSIZE + ")");
+	    if (hf.getNumColdBlocks() != numBlocks || hf.getNumBlocks() != numBlocks)
+		throw new TestFailedException("Every block should be cold.");
+	    if (hf.getColdBytes() >= numBlocks*Block.BLOCKSIZE/2)
+		throw new TestFailedException("Cold blocks did not compress.");
+
+	    for(int i = 0; i < limit; i++) {
+		ByteBuffer record = ByteBuffer.wrap(hf.getRecord(rids.get(i)));
+		if (record.getInt() != i || record.getInt() != i % 3)
+		    throw new TestFailedException("Record " + i + " was corrupted.");
+	    }
+	    if (hf.getNumColdBlocks() != numBlocks)
+		throw new TestFailedException("Reads should leave blocks cold.");
+
+	    //inserting and vacuuming must not open cold blocks they do not change.
+	    new BlockVacuum(hf, 0.1, 0, new HeapFile.RecordMoveListener() {
+		    public void recordMoved(RID oldRid, RID newRid) {
+			throw new TestFailedException("No block is sparse enough to merge.");
+		    }
+		}).vacuumStep();
+	    if (hf.getNumColdBlocks() != numBlocks)
+		throw new TestFailedException("The vacuum should leave full blocks cold.");
+	    hf.insertRecord(ByteBuffer.allocate(20).putInt(limit).array());
+	    if (hf.getNumColdBlocks() != numBlocks - 1)
+		throw new TestFailedException("An insert should only open the block it changes.");
+
+	    //only reading records counts as use; sweeps of the chain do not.
+	    hf = new HeapFile();
+	    rids.clear();
+	    for(int i = 0; i < limit; i++) {
+		byte[] tmpBuf = ByteBuffer.allocate(20).putInt(i).putInt(i % 3).array();
+		rids.add(hf.insertRecord(tmpBuf));
+	    }
+	    for(int i = 0; i < 1000; i++)
+		hf.getRecord(rids.get(0));
+	    new BlockVacuum(hf, 0.1, 0, new HeapFile.RecordMoveListener() {
+		    public void recordMoved(RID oldRid, RID newRid) {
+			throw new TestFailedException("No block is sparse enough to merge.");
+		    }
+		}).vacuumStep();
+	    hf.compressColdBlocks(1);
+	    if (hf.isCold(rids.get(0).blockId))
+		throw new TestFailedException("The most recently read block was compressed.");
+	}
+    }
+
+    public static class Test8 implements Testable
+    {
+	public void test() throws Exception
+	{
+	    int limit = 200;
+	    List<RID> rids = new ArrayList<RID>();
+
+	    HeapFile hf = new HeapFile();
+	    System.out.println("--- Test 8: Snapshot scan while records are " +
+                               "deleted and inserted ---");
+
+	    for(int i = 0; i < limit; i++) {
+		byte[] tmpBuf = ByteBuffer.allocate(20).putInt(i).array();
+		rids.add(hf.insertRecord(tmpBuf));
+	    }
+
+	    try (HeapFile.Snapshot snapshot = hf.openSnapshot())
+	    {
+		int sum = 0;
+		int count = 0;
+		boolean changed = false;
+		int blockId = snapshot.getFirstBlockId();
+		while (blockId != SlottedBlock.INVALID_BLOCK) {
+		    SlottedBlock sp = snapshot.getBlock(blockId);
+		    RID rid = sp.firstRecord();
+		    //change the file halfway through the scan.
+		    if (!changed && count >= limit/2) {
+			changed = true;
+			for(int i = 0; i < limit; i += 2) {
+			    hf.deleteRecord(rids.get(i));
+			}
+			for(int i = 0; i < limit; i++) {
+			    hf.insertRecord(ByteBuffer.allocate(20).putInt(-1).array());
+			}
+		    }
+		    for (; rid != null; rid = sp.nextRecord(rid)) {
+			sum += ByteBuffer.wrap(sp.getRecord(rid)).getInt();
+			count++;
+		    }
+		    blockId = sp.getNextBlockId();
+		}
+		System.out.println("Snapshot scan saw " + count + " records, " +
+				   hf.getNumRetiredBlocks() + " old versions held");
+		if (count != limit || sum != limit*(limit - 1)/2)
+		    throw new TestFailedException("Snapshot scan was not consistent.");
+
+		//the live file sees the changes.
+		if (ByteBuffer.wrap(hf.getRecord(rids.get(1))).getInt() != 1)
+		    throw new TestFailedException("Live record 1 was lost.");
+		if (ByteBuffer.wrap(hf.getRecord(rids.get(0))).getInt() != -1)
+		    throw new TestFailedException("Record 0 should have been replaced.");
+
+		if (hf.getNumRetiredBlocks() == 0)
+		    throw new TestFailedException("Writers should have copied blocks.");
+	    }
+	    if (hf.getNumRetiredBlocks() != 0)
+		throw new TestFailedException("Old versions were not reclaimed.");
+
+	    //a snapshot of cold blocks keeps seeing them after they are written.
+	    hf.compressColdBlocks(0);
+	    try (HeapFile.Snapshot snapshot = hf.openSnapshot())
+	    {
+		hf.deleteRecord(rids.get(1));
+		if (ByteBuffer.wrap(snapshot.getRecord(rids.get(1))).getInt() != 1)
+		    throw new TestFailedException("Snapshot lost record 1 of a cold block.");
+		if (ByteBuffer.wrap(snapshot.getRecord(rids.get(3))).getInt() != 3)
+		    throw new TestFailedException("Snapshot lost record 3 of a cold block.");
+	    }
+	}
+    }
+
+    public static boolean runTest(Testable testObj)
+    {
+        boolean success = true;
+        try
+        {
+            testObj.test();
+        }
+        catch (Exception e)
+        {
+            success = false;
+            e.printStackTrace();
+        }
+
+        return success;
+    }
+
+
+    public static void main(String[] args)
+    {
+        System.out.println("Running block tests.");
+
+        boolean success = true;
+        success &= runTest(new Test1());
+        success &= runTest(new Test2());
+        success &= runTest(new Test3());
+        success &= runTest(new Test4());
+        success &= runTest(new Test5());
+        success &= runTest(new Test6());
+        success &= runTest(new Test7());
+        success &= runTest(new Test8());
+
+        //non-zero exit status so that the build fails on a failed test.
+        if (!success)
+            System.exit(1);
+    }
+}